@@ -0,0 +1,238 @@
+package com.example;
+
+import com.example.LispEvaluator.Celda;
+import com.example.LispEvaluator.EvaluatorException;
+import com.example.LispEvaluator.LispFunction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Función creada con lambda o defun. Es una clausura plana: al crearse guarda solo
+ * las variables libres de su cuerpo que están ligadas léxicamente (por let, lambda o
+ * defun). Las variables globales no se capturan; se buscan en el entorno global al
+ * momento de la llamada. Una variable capturada que se asigna con setq se comparte
+ * mediante una Celda con el ámbito que la define.
+ *
+ * El análisis de la forma se guarda en una Plantilla compartida por todas las
+ * clausuras creadas desde ella; cada clausura solo guarda sus valores capturados.
+ */
+public class LispClosure implements LispFunction {
+
+    /**
+     * Resultado del análisis de una forma lambda o defun, calculado una sola vez.
+     */
+    static final class Plantilla {
+        final String nombre;
+        final String[] parametros;
+        final boolean[] parametrosMutables;
+        final List<?> cuerpo;
+        final String[] nombresCapturados;
+        final Map<String, Object> globales;
+        final Map<List<?>, Object> plantillas;
+
+        /**
+         * Analiza la forma. Las variables capturadas son las libres del cuerpo que
+         * están ligadas léxicamente en el ámbito del creador, que es el mismo para
+         * toda evaluación de la forma.
+         *
+         * @param nombre     Nombre de la función (defun), o null si es anónima.
+         * @param parametros Nombres de los parámetros.
+         * @param cuerpo     Expresiones del cuerpo.
+         * @param creador    Evaluador en el que se evalúa la forma.
+         */
+        Plantilla(String nombre, String[] parametros, List<?> cuerpo, LispEvaluator creador) {
+            this.nombre = nombre;
+            this.parametros = parametros;
+            this.cuerpo = cuerpo;
+            this.globales = creador.globales();
+            this.plantillas = creador.plantillas();
+
+            Set<String> mutables = variablesMutablesCapturadas(cuerpo);
+            this.parametrosMutables = new boolean[parametros.length];
+            for (int i = 0; i < parametros.length; i++) {
+                parametrosMutables[i] = mutables.contains(parametros[i]);
+            }
+
+            Set<String> ligadas = new HashSet<>();
+            for (String p : parametros) ligadas.add(p);
+            Set<String> libres = new LinkedHashSet<>();
+            for (Object expr : cuerpo) {
+                variablesLibres(expr, ligadas, libres);
+            }
+            List<String> nombres = new ArrayList<>();
+            for (String libre : libres) {
+                if (creador.ligaduraLexica(libre) != LispEvaluator.NO_LIGADA) nombres.add(libre);
+            }
+            this.nombresCapturados = nombres.toArray(new String[0]);
+        }
+    }
+
+    private final Plantilla plantilla;
+    private final Object[] valoresCapturados;
+
+    /**
+     * Crea la clausura tomando del ámbito del creador los valores de las variables
+     * que indica la plantilla.
+     *
+     * @param plantilla Análisis de la forma lambda o defun.
+     * @param creador   Evaluador en el que se evalúa la forma.
+     */
+    LispClosure(Plantilla plantilla, LispEvaluator creador) {
+        this.plantilla = plantilla;
+        String[] nombres = plantilla.nombresCapturados;
+        this.valoresCapturados = new Object[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            valoresCapturados[i] = creador.ligaduraLexica(nombres[i]);
+        }
+    }
+
+    @Override
+    public Object apply(List<Object> args) throws EvaluatorException {
+        Plantilla p = plantilla;
+        if (args.size() != p.parametros.length)
+            throw new EvaluatorException("Número de argumentos incorrecto para " + (p.nombre != null ? p.nombre : "lambda"));
+        Object[] valores = new Object[p.parametros.length];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = p.parametrosMutables[i] ? new Celda(args.get(i)) : args.get(i);
+        }
+        LispEvaluator capturas = p.nombresCapturados.length == 0 ? null
+                : new LispEvaluator(p.globales, p.plantillas, p.nombresCapturados, valoresCapturados, null);
+        LispEvaluator localEval = new LispEvaluator(p.globales, p.plantillas, p.parametros, valores, capturas);
+        Object resultado = null;
+        for (Object expr : p.cuerpo) {
+            resultado = localEval.evaluar(expr);
+        }
+        return resultado;
+    }
+
+    /**
+     * @return Análisis compartido de la forma que creó la clausura.
+     */
+    Plantilla plantilla() {
+        return plantilla;
+    }
+
+    /**
+     * @return Nombres de las variables capturadas por la clausura.
+     */
+    public String[] getNombresCapturados() {
+        return plantilla.nombresCapturados.clone();
+    }
+
+    @Override
+    public String toString() {
+        return plantilla.nombre != null ? "#<function " + plantilla.nombre + ">" : "#<closure>";
+    }
+
+    /**
+     * Recorre una expresión y agrega a libres los símbolos que no están ligados
+     * por parámetros, let o lambda. Lo citado con quote se ignora.
+     *
+     * @param expr    Expresión a analizar.
+     * @param ligadas Símbolos ligados en este punto.
+     * @param libres  Conjunto donde se acumulan las variables libres.
+     */
+    static void variablesLibres(Object expr, Set<String> ligadas, Set<String> libres) {
+        if (expr instanceof String) {
+            String simbolo = (String) expr;
+            if (!ligadas.contains(simbolo)) libres.add(simbolo);
+            return;
+        }
+        if (!(expr instanceof List)) return;
+        List<?> lista = (List<?>) expr;
+        if (lista.isEmpty()) return;
+        Object cabeza = lista.get(0);
+
+        if ("quote".equals(cabeza)) return;
+
+        if ("lambda".equals(cabeza) && lista.size() >= 2 && lista.get(1) instanceof List) {
+            Set<String> internas = new HashSet<>(ligadas);
+            for (Object p : (List<?>) lista.get(1)) {
+                if (p instanceof String) internas.add((String) p);
+            }
+            for (int i = 2; i < lista.size(); i++) {
+                variablesLibres(lista.get(i), internas, libres);
+            }
+            return;
+        }
+
+        if ("defun".equals(cabeza) && lista.size() >= 3 && lista.get(2) instanceof List) {
+            Set<String> internas = new HashSet<>(ligadas);
+            for (Object p : (List<?>) lista.get(2)) {
+                if (p instanceof String) internas.add((String) p);
+            }
+            for (int i = 3; i < lista.size(); i++) {
+                variablesLibres(lista.get(i), internas, libres);
+            }
+            return;
+        }
+
+        if ("let".equals(cabeza) && lista.size() >= 2 && lista.get(1) instanceof List) {
+            Set<String> internas = new HashSet<>(ligadas);
+            for (Object ligadura : (List<?>) lista.get(1)) {
+                if (ligadura instanceof String) {
+                    internas.add((String) ligadura);
+                } else if (ligadura instanceof List && !((List<?>) ligadura).isEmpty()) {
+                    List<?> par = (List<?>) ligadura;
+                    if (par.size() > 1) variablesLibres(par.get(1), ligadas, libres);
+                    if (par.get(0) instanceof String) internas.add((String) par.get(0));
+                }
+            }
+            for (int i = 2; i < lista.size(); i++) {
+                variablesLibres(lista.get(i), internas, libres);
+            }
+            return;
+        }
+
+        for (Object elemento : lista) {
+            variablesLibres(elemento, ligadas, libres);
+        }
+    }
+
+    /**
+     * Conversión de asignaciones: devuelve los nombres que el cuerpo asigna con setq y
+     * que además aparecen dentro de una lambda o defun interna. Esas variables deben
+     * ligarse en una Celda para que el ámbito y las clausuras vean las mismas
+     * asignaciones. El análisis ignora el sombreado, así que puede incluir nombres de
+     * más; eso solo agrega Celdas innecesarias.
+     *
+     * @param cuerpo Expresiones del ámbito.
+     * @return Nombres que requieren Celda.
+     */
+    static Set<String> variablesMutablesCapturadas(List<?> cuerpo) {
+        Set<String> asignadas = new HashSet<>();
+        Set<String> capturadas = new HashSet<>();
+        for (Object expr : cuerpo) {
+            recorrerAsignaciones(expr, false, asignadas, capturadas);
+        }
+        asignadas.retainAll(capturadas);
+        return asignadas;
+    }
+
+    private static void recorrerAsignaciones(Object expr, boolean enClausura,
+                                             Set<String> asignadas, Set<String> capturadas) {
+        if (expr instanceof String) {
+            if (enClausura) capturadas.add((String) expr);
+            return;
+        }
+        if (!(expr instanceof List)) return;
+        List<?> lista = (List<?>) expr;
+        if (lista.isEmpty()) return;
+        Object cabeza = lista.get(0);
+
+        if ("quote".equals(cabeza)) return;
+
+        if ("setq".equals(cabeza) && lista.size() >= 2 && lista.get(1) instanceof String) {
+            asignadas.add((String) lista.get(1));
+        }
+        boolean interna = enClausura || "lambda".equals(cabeza) || "defun".equals(cabeza);
+        for (int i = 1; i < lista.size(); i++) {
+            recorrerAsignaciones(lista.get(i), interna, asignadas, capturadas);
+        }
+    }
+}
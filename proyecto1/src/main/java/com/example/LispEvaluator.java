@@ -2,8 +2,10 @@ package com.example;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Evaluador de expresiones tipo Lisp. Permite la evaluación de ASTs (árboles de sintaxis abstracta)
@@ -11,13 +13,26 @@ import java.util.Map;
  */
 public class LispEvaluator {
 
+    /**
+     * Marca una ligadura capturada que no estaba ligada léxicamente; la búsqueda
+     * continúa hacia el entorno global.
+     */
+    static final Object NO_LIGADA = new Object();
+
+    private static final String[] SIN_NOMBRES = new String[0];
+    private static final Object[] SIN_VALORES = new Object[0];
+
     private final Map<String, Object> environment;
+    private final Map<List<?>, Object> plantillas;
+    private final String[] nombres;
+    private final Object[] valores;
+    private final LispEvaluator padre;
 
     /**
      * Constructor por defecto. Inicializa un entorno vacío.
      */
     public LispEvaluator() {
-        this.environment = new HashMap<>();
+        this(new HashMap<>(), new IdentityHashMap<>(), SIN_NOMBRES, SIN_VALORES, null);
     }
 
     /**
@@ -26,7 +41,25 @@ public class LispEvaluator {
      * @param env Mapa con variables y funciones iniciales.
      */
     public LispEvaluator(Map<String, Object> env) {
-        this.environment = new HashMap<>(env);
+        this(new HashMap<>(env), new IdentityHashMap<>(), SIN_NOMBRES, SIN_VALORES, null);
+    }
+
+    /**
+     * Constructor de un ámbito léxico. Los mapas y arreglos se usan tal cual, sin copiarlos.
+     *
+     * @param globales   Entorno global compartido.
+     * @param plantillas Análisis de cada forma lambda, defun y let, compartido por el intérprete.
+     * @param nombres    Variables ligadas en este ámbito (let, parámetros o capturadas).
+     * @param valores    Valores de esas variables, en el mismo orden.
+     * @param padre      Ámbito léxico que encierra a este, o null.
+     */
+    LispEvaluator(Map<String, Object> globales, Map<List<?>, Object> plantillas,
+                  String[] nombres, Object[] valores, LispEvaluator padre) {
+        this.environment = globales;
+        this.plantillas = plantillas;
+        this.nombres = nombres;
+        this.valores = valores;
+        this.padre = padre;
     }
 
     /**
@@ -42,6 +75,10 @@ public class LispEvaluator {
             if (token.startsWith("\"") && token.endsWith("\"")) {
                 return token.substring(1, token.length() - 1);
             }
+            Object ligadura = ligaduraLexica(token);
+            if (ligadura != NO_LIGADA) {
+                return leerLigadura(ligadura);
+            }
             if (environment.containsKey(token)) {
                 return environment.get(token);
             }
@@ -72,36 +109,34 @@ public class LispEvaluator {
                     if (lista.size() != 3) throw new EvaluatorException("setq requiere 2 argumentos");
                     String variable = (String) lista.get(1);
                     Object valor = evaluar(lista.get(2));
-                    environment.put(variable, valor);
+                    asignar(variable, valor);
                     return valor;
 
                 case "defun":
                     if (lista.size() < 4) throw new EvaluatorException("defun requiere nombre, parámetros y cuerpo");
                     String nombreFuncion = (String) lista.get(1);
-                    Object params = lista.get(2);
-                    List<?> cuerpo = lista.subList(3, lista.size());
-                    environment.put(nombreFuncion, new LispFunction() {
-                        @Override
-                        public Object apply(List<Object> args) throws EvaluatorException {
-                            if (!(params instanceof List))
-                                throw new EvaluatorException("Parámetros deben ser una lista");
-                            List<?> paramsLista = (List<?>) params;
-                            if (args.size() != paramsLista.size())
-                                throw new EvaluatorException("Número de argumentos incorrecto para " + nombreFuncion);
-                            Map<String, Object> localEnv = new HashMap<>(environment);
-                            for (int i = 0; i < paramsLista.size(); i++) {
-                                localEnv.put((String) paramsLista.get(i), args.get(i));
-                            }
-                            LispEvaluator localEval = new LispEvaluator(localEnv);
-                            Object resultado = null;
-                            for (Object expr : cuerpo) {
-                                resultado = localEval.evaluar(expr);
-                            }
-                            return resultado;
-                        }
-                    });
+                    environment.put(nombreFuncion, crearClosure(lista, nombreFuncion, 2));
                     return nombreFuncion;
 
+                case "lambda":
+                    if (lista.size() < 3) throw new EvaluatorException("lambda requiere parámetros y cuerpo");
+                    return crearClosure(lista, null, 1);
+
+                case "funcall":
+                    if (lista.size() < 2) throw new EvaluatorException("funcall requiere una función");
+                    LispFunction funcLlamada = resolverFuncion(evaluar(lista.get(1)));
+                    List<Object> argsFuncall = new ArrayList<>();
+                    for (int i = 2; i < lista.size(); i++) {
+                        argsFuncall.add(evaluar(lista.get(i)));
+                    }
+                    return funcLlamada.apply(argsFuncall);
+
+                case "let":
+                    if (lista.size() < 3) throw new EvaluatorException("let requiere ligaduras y cuerpo");
+                    if (!(lista.get(1) instanceof List))
+                        throw new EvaluatorException("Las ligaduras de let deben ser una lista");
+                    return evaluarLet(lista);
+
                 case "quote":
                     if (lista.size() != 2)
                         throw new EvaluatorException("quote requiere exactamente 1 argumento");
@@ -168,8 +203,45 @@ public class LispEvaluator {
                     Object argList = evaluar(lista.get(1));
                     return argList instanceof List;
 
+                case "make-hash-table":
+                    if (lista.size() != 1)
+                        throw new EvaluatorException("make-hash-table no recibe argumentos");
+                    return new LispHashTable();
+
+                case "gethash":
+                    if (lista.size() != 3)
+                        throw new EvaluatorException("gethash requiere llave y tabla");
+                    Object llaveGet = evaluar(lista.get(1));
+                    return toHashTable(evaluar(lista.get(2))).get(llaveGet);
+
+                case "puthash":
+                    if (lista.size() != 4)
+                        throw new EvaluatorException("puthash requiere llave, valor y tabla");
+                    Object llavePut = evaluar(lista.get(1));
+                    Object valorPut = evaluar(lista.get(2));
+                    return toHashTable(evaluar(lista.get(3))).put(llavePut, valorPut);
+
+                case "remhash":
+                    if (lista.size() != 3)
+                        throw new EvaluatorException("remhash requiere llave y tabla");
+                    Object llaveRem = evaluar(lista.get(1));
+                    return toHashTable(evaluar(lista.get(2))).remove(llaveRem);
+
+                case "maphash":
+                    if (lista.size() != 3)
+                        throw new EvaluatorException("maphash requiere función y tabla");
+                    LispFunction funcMap = resolverFuncion(evaluar(lista.get(1)));
+                    LispHashTable tablaMap = toHashTable(evaluar(lista.get(2)));
+                    tablaMap.forEach((k, v) -> {
+                        List<Object> par = new ArrayList<>(2);
+                        par.add(k);
+                        par.add(v);
+                        funcMap.apply(par);
+                    });
+                    return null;
+
                 default:
-                    Object func = environment.get(operador);
+                    Object func = buscarFuncion(operador);
                     if (func == null) throw new EvaluatorException("Función no definida: " + operador);
                     if (!(func instanceof LispFunction))
                         throw new EvaluatorException(operador + " no es una función");
@@ -234,6 +306,143 @@ public class LispEvaluator {
         }
     }
 
+    /**
+     * Evalúa un let en un ámbito léxico hijo. Las variables que el cuerpo asigna con
+     * setq y que alguna lambda interna captura se guardan en una Celda compartida.
+     * El análisis de cada forma let se hace una sola vez y se guarda en plantillas.
+     *
+     * @param forma Forma (let ligaduras cuerpo...).
+     * @return Resultado de la última expresión del cuerpo.
+     * @throws EvaluatorException Si las ligaduras son inválidas o falla el cuerpo.
+     */
+    private Object evaluarLet(List<?> forma) throws EvaluatorException {
+        PlantillaLet plantilla = (PlantillaLet) plantillas.get(forma);
+        if (plantilla == null) {
+            plantilla = new PlantillaLet(forma);
+            plantillas.put(forma, plantilla);
+        }
+
+        int n = plantilla.nombres.length;
+        Object[] ligadas = new Object[n];
+        for (int i = 0; i < n; i++) {
+            Object valor = plantilla.iniciales[i] == null ? null : evaluar(plantilla.iniciales[i]);
+            ligadas[i] = plantilla.mutables[i] ? new Celda(valor) : valor;
+        }
+
+        LispEvaluator ambitoLet = new LispEvaluator(environment, plantillas, plantilla.nombres, ligadas, this);
+        Object resultado = null;
+        for (Object expr : plantilla.cuerpo) {
+            resultado = ambitoLet.evaluar(expr);
+        }
+        return resultado;
+    }
+
+    /**
+     * Crea una clausura para una forma lambda o defun, reutilizando el análisis
+     * de la forma si ya se hizo antes.
+     *
+     * @param forma           Forma lambda o defun.
+     * @param nombre          Nombre de la función (defun), o null si es anónima.
+     * @param indiceParametros Posición de la lista de parámetros en la forma.
+     * @return La clausura.
+     * @throws EvaluatorException Si los parámetros son inválidos.
+     */
+    private LispClosure crearClosure(List<?> forma, String nombre, int indiceParametros) throws EvaluatorException {
+        LispClosure.Plantilla plantilla = (LispClosure.Plantilla) plantillas.get(forma);
+        if (plantilla == null) {
+            plantilla = new LispClosure.Plantilla(nombre, nombresParametros(forma.get(indiceParametros)),
+                    forma.subList(indiceParametros + 1, forma.size()), this);
+            plantillas.put(forma, plantilla);
+        }
+        return new LispClosure(plantilla, this);
+    }
+
+    /**
+     * Convierte una lista de parámetros en un arreglo de nombres.
+     *
+     * @param params Lista de parámetros.
+     * @return Nombres de los parámetros.
+     * @throws EvaluatorException Si no es una lista de símbolos.
+     */
+    private static String[] nombresParametros(Object params) throws EvaluatorException {
+        if (!(params instanceof List))
+            throw new EvaluatorException("Parámetros deben ser una lista");
+        List<?> paramsLista = (List<?>) params;
+        String[] nombres = new String[paramsLista.size()];
+        for (int i = 0; i < nombres.length; i++) {
+            if (!(paramsLista.get(i) instanceof String))
+                throw new EvaluatorException("Parámetro inválido: " + paramsLista.get(i));
+            nombres[i] = (String) paramsLista.get(i);
+        }
+        return nombres;
+    }
+
+    /**
+     * Busca la ligadura léxica más cercana del nombre.
+     *
+     * @param nombre Nombre de la variable.
+     * @return El valor ligado (posiblemente una Celda), o NO_LIGADA si no está ligada léxicamente.
+     */
+    Object ligaduraLexica(String nombre) {
+        for (LispEvaluator e = this; e != null; e = e.padre) {
+            String[] n = e.nombres;
+            for (int i = 0; i < n.length; i++) {
+                if (n[i].equals(nombre) && e.valores[i] != NO_LIGADA) return e.valores[i];
+            }
+        }
+        return NO_LIGADA;
+    }
+
+    /**
+     * Asigna una variable: la ligadura léxica más cercana si existe, o el entorno global.
+     *
+     * @param nombre Nombre de la variable.
+     * @param valor  Valor a asignar.
+     */
+    private void asignar(String nombre, Object valor) {
+        for (LispEvaluator e = this; e != null; e = e.padre) {
+            String[] n = e.nombres;
+            for (int i = 0; i < n.length; i++) {
+                if (n[i].equals(nombre) && e.valores[i] != NO_LIGADA) {
+                    if (e.valores[i] instanceof Celda) ((Celda) e.valores[i]).valor = valor;
+                    else e.valores[i] = valor;
+                    return;
+                }
+            }
+        }
+        environment.put(nombre, valor);
+    }
+
+    /**
+     * @return El entorno global compartido.
+     */
+    Map<String, Object> globales() {
+        return environment;
+    }
+
+    /**
+     * @return El caché de plantillas compartido por el intérprete.
+     */
+    Map<List<?>, Object> plantillas() {
+        return plantillas;
+    }
+
+    /**
+     * Busca una función por nombre, primero en los ámbitos léxicos y luego en el entorno global.
+     *
+     * @param nombre Nombre de la función.
+     * @return La función o el valor ligado, o null si no existe.
+     */
+    private Object buscarFuncion(String nombre) {
+        Object ligadura = ligaduraLexica(nombre);
+        if (ligadura != NO_LIGADA) return leerLigadura(ligadura);
+        return environment.get(nombre);
+    }
+
+    private static Object leerLigadura(Object ligadura) {
+        return ligadura instanceof Celda ? ((Celda) ligadura).valor : ligadura;
+    }
+
     /**
      * Convierte un objeto a número decimal.
      *
@@ -247,6 +456,35 @@ public class LispEvaluator {
         throw new EvaluatorException("No se pudo convertir a número: " + o);
     }
 
+    /**
+     * Convierte un objeto a tabla hash.
+     *
+     * @param o Objeto a convertir.
+     * @return La tabla hash.
+     * @throws EvaluatorException Si no es una tabla hash.
+     */
+    private LispHashTable toHashTable(Object o) throws EvaluatorException {
+        if (o instanceof LispHashTable) return (LispHashTable) o;
+        throw new EvaluatorException("No es una tabla hash: " + o);
+    }
+
+    /**
+     * Obtiene la función indicada por un valor: la función misma o el nombre
+     * de una función definida en el entorno.
+     *
+     * @param f Función o símbolo con el nombre de la función.
+     * @return La función.
+     * @throws EvaluatorException Si el valor no corresponde a una función.
+     */
+    private LispFunction resolverFuncion(Object f) throws EvaluatorException {
+        if (f instanceof String) {
+            Object func = buscarFuncion((String) f);
+            if (func instanceof LispFunction) return (LispFunction) func;
+        }
+        if (f instanceof LispFunction) return (LispFunction) f;
+        throw new EvaluatorException(f + " no es una función");
+    }
+
     /**
      * Compara dos objetos al estilo Lisp.
      *
@@ -254,7 +492,7 @@ public class LispEvaluator {
      * @param b Segundo objeto.
      * @return true si son iguales, false si no.
      */
-    private boolean equalLisp(Object a, Object b) {
+    static boolean equalLisp(Object a, Object b) {
         if (a == b) return true;
         if (a == null || b == null) return false;
         if (a instanceof List && b instanceof List) {
@@ -269,6 +507,52 @@ public class LispEvaluator {
         return a.equals(b);
     }
 
+    /**
+     * Caja mutable para una variable léxica que se asigna con setq y que es capturada
+     * por una clausura; el ámbito que la define y la clausura comparten la misma Celda.
+     */
+    static final class Celda {
+        Object valor;
+
+        Celda(Object valor) {
+            this.valor = valor;
+        }
+    }
+
+    /**
+     * Análisis de una forma let: nombres, expresiones iniciales y qué variables
+     * requieren Celda. Se calcula una vez por forma.
+     */
+    private static final class PlantillaLet {
+        final String[] nombres;
+        final Object[] iniciales;
+        final boolean[] mutables;
+        final List<?> cuerpo;
+
+        PlantillaLet(List<?> forma) throws EvaluatorException {
+            List<?> ligaduras = (List<?>) forma.get(1);
+            cuerpo = forma.subList(2, forma.size());
+            Set<String> mutablesCapturadas = LispClosure.variablesMutablesCapturadas(cuerpo);
+            int n = ligaduras.size();
+            nombres = new String[n];
+            iniciales = new Object[n];
+            mutables = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                Object ligadura = ligaduras.get(i);
+                if (ligadura instanceof String) {
+                    nombres[i] = (String) ligadura;
+                } else if (ligadura instanceof List && ((List<?>) ligadura).size() == 2
+                        && ((List<?>) ligadura).get(0) instanceof String) {
+                    nombres[i] = (String) ((List<?>) ligadura).get(0);
+                    iniciales[i] = ((List<?>) ligadura).get(1);
+                } else {
+                    throw new EvaluatorException("Ligadura de let inválida: " + ligadura);
+                }
+                mutables[i] = mutablesCapturadas.contains(nombres[i]);
+            }
+        }
+    }
+
     /**
      * Interfaz funcional para definir funciones Lisp.
      */
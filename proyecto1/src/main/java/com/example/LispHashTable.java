@@ -0,0 +1,282 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * Tabla hash de direccionamiento abierto (sondeo lineal) usada por los built-ins
+ * make-hash-table, gethash, puthash, remhash y maphash.
+ * Las llaves enteras se guardan como long primitivo y los símbolos se buscan con
+ * String.hashCode y String.equals, sin objetos Entry. Las llaves que son listas
+ * usan un hash consistente con equal.
+ */
+public class LispHashTable {
+
+    /**
+     * Acción que se aplica a cada par llave-valor al recorrer la tabla.
+     */
+    public interface Visitante {
+        void visitar(Object llave, Object valor) throws LispEvaluator.EvaluatorException;
+    }
+
+    private static final byte LIBRE = 0;
+    private static final byte LLAVE_LONG = 1;
+    private static final byte LLAVE_OBJETO = 2;
+    private static final byte BORRADO = 3;
+
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private byte[] estados;
+    private long[] llavesLong;
+    private Object[] llavesObjeto;
+    private Object[] valores;
+    private int tamano;
+    private int ocupados;
+
+    /**
+     * Crea una tabla vacía con la capacidad inicial por defecto.
+     */
+    public LispHashTable() {
+        inicializar(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Devuelve el valor asociado a la llave.
+     *
+     * @param llave Llave a buscar.
+     * @return El valor asociado, o null si la llave no existe.
+     */
+    public Object get(Object llave) {
+        int i = buscar(llave);
+        return i < 0 ? null : valores[i];
+    }
+
+    /**
+     * Asocia un valor a una llave, reemplazando el anterior si existía.
+     *
+     * @param llave Llave a insertar.
+     * @param valor Valor a asociar.
+     * @return El valor insertado.
+     */
+    public Object put(Object llave, Object valor) {
+        int i = buscar(llave);
+        if (i >= 0) {
+            valores[i] = valor;
+            return valor;
+        }
+        if ((ocupados + 1) * 4 > estados.length * 3) {
+            redimensionar();
+        }
+        insertarNuevo(llave, valor);
+        return valor;
+    }
+
+    /**
+     * Elimina la llave de la tabla.
+     *
+     * @param llave Llave a eliminar.
+     * @return true si la llave existía, false si no.
+     */
+    public boolean remove(Object llave) {
+        int i = buscar(llave);
+        if (i < 0) return false;
+        estados[i] = BORRADO;
+        llavesObjeto[i] = null;
+        valores[i] = null;
+        tamano--;
+        return true;
+    }
+
+    /**
+     * Recorre todos los pares llave-valor de la tabla. El visitante puede agregar,
+     * modificar o eliminar llaves: si la tabla se redimensiona durante el recorrido,
+     * cada llave pendiente se vuelve a buscar en la tabla vigente, de modo que las
+     * llaves eliminadas no se visitan y los valores son los actuales. Las llaves
+     * agregadas durante el recorrido pueden no visitarse.
+     *
+     * @param visitante Acción a aplicar a cada par.
+     * @throws LispEvaluator.EvaluatorException Si el visitante falla.
+     */
+    public void forEach(Visitante visitante) throws LispEvaluator.EvaluatorException {
+        byte[] e = estados;
+        long[] kl = llavesLong;
+        Object[] ko = llavesObjeto;
+        Object[] v = valores;
+        for (int i = 0; i < e.length; i++) {
+            if (e[i] == LLAVE_LONG) {
+                if (estados == e) {
+                    visitante.visitar(llaveComoObjeto(kl[i]), v[i]);
+                } else {
+                    int j = buscarLong(kl[i]);
+                    if (j >= 0) visitante.visitar(llaveComoObjeto(kl[i]), valores[j]);
+                }
+            } else if (e[i] == LLAVE_OBJETO) {
+                if (estados == e) {
+                    visitante.visitar(ko[i], v[i]);
+                } else {
+                    int j = buscar(ko[i]);
+                    if (j >= 0) visitante.visitar(ko[i], valores[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Número de llaves en la tabla.
+     */
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public String toString() {
+        return "#<hash-table " + tamano + ">";
+    }
+
+    private void inicializar(int capacidad) {
+        estados = new byte[capacidad];
+        llavesLong = new long[capacidad];
+        llavesObjeto = new Object[capacidad];
+        valores = new Object[capacidad];
+        tamano = 0;
+        ocupados = 0;
+    }
+
+    /**
+     * Busca la posición de la llave usando sondeo lineal.
+     *
+     * @param llave Llave a buscar.
+     * @return Índice de la llave, o -1 si no existe.
+     */
+    private int buscar(Object llave) {
+        if (esLlaveLong(llave)) return buscarLong(((Number) llave).longValue());
+        int mascara = estados.length - 1;
+        if (llave instanceof String) {
+            int i = mezclar(llave.hashCode()) & mascara;
+            while (estados[i] != LIBRE) {
+                if (estados[i] == LLAVE_OBJETO && llave.equals(llavesObjeto[i])) return i;
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+        int i = mezclar(hashLisp(llave)) & mascara;
+        while (estados[i] != LIBRE) {
+            if (estados[i] == LLAVE_OBJETO && LispEvaluator.equalLisp(llavesObjeto[i], llave)) return i;
+            i = (i + 1) & mascara;
+        }
+        return -1;
+    }
+
+    private int buscarLong(long k) {
+        int mascara = estados.length - 1;
+        int i = mezclar(Long.hashCode(k)) & mascara;
+        while (estados[i] != LIBRE) {
+            if (estados[i] == LLAVE_LONG && llavesLong[i] == k) return i;
+            i = (i + 1) & mascara;
+        }
+        return -1;
+    }
+
+    /**
+     * Inserta una llave que se sabe que no está en la tabla.
+     */
+    private void insertarNuevo(Object llave, Object valor) {
+        if (esLlaveLong(llave)) {
+            insertarLong(((Number) llave).longValue(), valor);
+        } else {
+            insertarObjeto(llave, valor);
+        }
+    }
+
+    /**
+     * Inserta una llave long nueva en la primera posición libre o borrada del recorrido.
+     */
+    private void insertarLong(long k, Object valor) {
+        int i = posicionLibre(mezclar(Long.hashCode(k)));
+        estados[i] = LLAVE_LONG;
+        llavesLong[i] = k;
+        valores[i] = valor;
+        tamano++;
+    }
+
+    /**
+     * Inserta una llave objeto nueva en la primera posición libre o borrada del recorrido.
+     */
+    private void insertarObjeto(Object llave, Object valor) {
+        int i = posicionLibre(mezclar(hashLisp(llave)));
+        estados[i] = LLAVE_OBJETO;
+        llavesObjeto[i] = llave;
+        valores[i] = valor;
+        tamano++;
+    }
+
+    private int posicionLibre(int hash) {
+        int mascara = estados.length - 1;
+        int i = hash & mascara;
+        while (estados[i] == LLAVE_LONG || estados[i] == LLAVE_OBJETO) {
+            i = (i + 1) & mascara;
+        }
+        if (estados[i] == LIBRE) ocupados++;
+        return i;
+    }
+
+    /**
+     * Reconstruye la tabla descartando las posiciones borradas; duplica la
+     * capacidad solo si las llaves vivas ocupan más de la mitad.
+     */
+    private void redimensionar() {
+        byte[] viejosEstados = estados;
+        long[] viejasLong = llavesLong;
+        Object[] viejasObjeto = llavesObjeto;
+        Object[] viejosValores = valores;
+        int capacidad = tamano * 2 >= viejosEstados.length ? viejosEstados.length * 2 : viejosEstados.length;
+        inicializar(capacidad);
+        for (int i = 0; i < viejosEstados.length; i++) {
+            if (viejosEstados[i] == LLAVE_LONG) {
+                insertarLong(viejasLong[i], viejosValores[i]);
+            } else if (viejosEstados[i] == LLAVE_OBJETO) {
+                insertarObjeto(viejasObjeto[i], viejosValores[i]);
+            }
+        }
+    }
+
+    private static boolean esLlaveLong(Object llave) {
+        return llave instanceof Integer || llave instanceof Long;
+    }
+
+    /**
+     * Devuelve la llave long con el tipo que usa el intérprete (Integer si cabe).
+     */
+    private static Object llaveComoObjeto(long k) {
+        if (k == (int) k) return (int) k;
+        return k;
+    }
+
+    /**
+     * Hash consistente con equal: dos listas iguales elemento a elemento
+     * producen el mismo hash.
+     *
+     * @param o Objeto del que se calcula el hash.
+     * @return Valor hash.
+     */
+    static int hashLisp(Object o) {
+        if (o instanceof String) return o.hashCode();
+        if (o == null) return 0;
+        if (esLlaveLong(o)) return Long.hashCode(((Number) o).longValue());
+        if (o instanceof List) {
+            int h = 1;
+            for (Object elemento : (List<?>) o) {
+                h = 31 * h + hashLisp(elemento);
+            }
+            return h;
+        }
+        return o.hashCode();
+    }
+
+    /**
+     * Dispersa los bits altos del hash hacia los bajos, ya que el índice usa una máscara.
+     */
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import com.example.LispEvaluator.EvaluatorException;
+
+public class LispClosureTest {
+
+    private LispEvaluator evaluator;
+
+    @BeforeEach
+    public void setup() {
+        evaluator = new LispEvaluator();
+    }
+
+    private Object eval(String expr) throws Exception {
+        List<String> tokens = LispLexer.dividirEnTokens(expr);
+        return evaluator.evaluar(new LispParser(tokens).parse());
+    }
+
+    @Test
+    public void testLambdaFuncallAndLet() throws Exception {
+        eval("(setq sumador (let ((n 5)) (lambda (x) (+ x n))))");
+
+        // La clausura conserva n aunque el let ya terminó
+        assertEquals(8, eval("(funcall sumador 3)"));
+        assertEquals(8, eval("(sumador 3)"));
+        assertThrows(EvaluatorException.class, () -> eval("n"));
+
+        assertEquals(6, eval("(let ((a 2) (b 3)) (* a b))"));
+    }
+
+    @Test
+    public void testCapturaSoloVariablesLexicasLibres() throws Exception {
+        eval("(setq global 1)");
+        Object closure = eval("(let ((usada 1) (ignorada 2)) (lambda (x) (+ x usada global (quote ignorada))))");
+        assertTrue(closure instanceof LispClosure);
+        assertArrayEquals(new String[] {"usada"}, ((LispClosure) closure).getNombresCapturados());
+    }
+
+    @Test
+    public void testSetqSobreGlobalDesdeClausura() throws Exception {
+        eval("(setq counter 0)");
+        eval("(setq inc (lambda () (setq counter (+ counter 1))))");
+        assertEquals(1, eval("(funcall inc)"));
+        assertEquals(2, eval("(funcall inc)"));
+        assertEquals(2, eval("counter"));
+    }
+
+    @Test
+    public void testSetqSobreVariableCapturadaSeComparte() throws Exception {
+        eval("(setq inc (let ((c 0)) (lambda () (setq c (+ c 1)))))");
+        assertEquals(1, eval("(funcall inc)"));
+        assertEquals(2, eval("(funcall inc)"));
+
+        // El ámbito que define la variable ve las asignaciones de la clausura
+        assertEquals(1, eval("(let ((c 0)) (funcall (lambda () (setq c 1))) c)"));
+        // Y la clausura ve las asignaciones del ámbito
+        assertEquals(2, eval("(let ((c 0)) (setq f (lambda () c)) (setq c 2) (funcall f))"));
+    }
+
+    @Test
+    public void testGlobalesSeResuelvenAlLlamar() throws Exception {
+        eval("(setq later (lambda (x) (h x)))");
+        eval("(defun h (x) 42)");
+        assertEquals(42, eval("(funcall later 0)"));
+
+        eval("(defun h (x) 7)");
+        assertEquals(7, eval("(funcall later 0)"));
+    }
+
+    @Test
+    public void testLetEsLexico() throws Exception {
+        eval("(defun peek () n)");
+        assertThrows(EvaluatorException.class, () -> eval("(let ((n 5)) (peek))"));
+    }
+
+    @Test
+    public void testRecursionMutuaConDefun() throws Exception {
+        eval("(defun par (n) (cond ((= n 0) 1) (t (impar (- n 1)))))");
+        eval("(defun impar (n) (cond ((= n 0) 0) (t (par (- n 1)))))");
+        assertEquals(1, eval("(par 10)"));
+        assertEquals(0, eval("(par 7)"));
+    }
+
+    @Test
+    public void testClausurasDeUnaFormaCompartenPlantilla() throws Exception {
+        eval("(defun mk (n) (lambda (x) (+ x n)))");
+        eval("(setq f1 (mk 1))");
+        eval("(setq f2 (mk 2))");
+        LispClosure c1 = (LispClosure) eval("f1");
+        LispClosure c2 = (LispClosure) eval("f2");
+        assertSame(c1.plantilla(), c2.plantilla());
+        assertEquals(11, eval("(funcall f1 10)"));
+        assertEquals(12, eval("(funcall f2 10)"));
+    }
+
+    @Test
+    public void testLetReevaluadoUsaValoresNuevos() throws Exception {
+        eval("(defun sumar (a) (let ((b (* a 2)) (c 1)) (+ a b c)))");
+        assertEquals(4, eval("(sumar 1)"));
+        assertEquals(10, eval("(sumar 3)"));
+        // Ligadura sin valor inicial
+        assertNull(eval("(let (x) x)"));
+    }
+}
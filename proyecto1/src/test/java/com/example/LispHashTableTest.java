@@ -0,0 +1,153 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.LispEvaluator.EvaluatorException;
+
+public class LispHashTableTest {
+
+    private LispEvaluator evaluator;
+
+    @BeforeEach
+    public void setup() {
+        evaluator = new LispEvaluator();
+    }
+
+    @Test
+    public void testBuiltins() throws EvaluatorException {
+        // (setq h (make-hash-table))
+        evaluator.evaluar(Arrays.asList("setq", "h", Arrays.asList("make-hash-table")));
+
+        // Llaves enteras, símbolos y listas
+        evaluator.evaluar(Arrays.asList("puthash", 1, "\"uno\"", "h"));
+        evaluator.evaluar(Arrays.asList("puthash", Arrays.asList("quote", "a"), 2, "h"));
+        evaluator.evaluar(Arrays.asList("puthash", Arrays.asList("quote", Arrays.asList(1, 2)), 3, "h"));
+
+        assertEquals("uno", evaluator.evaluar(Arrays.asList("gethash", 1, "h")));
+        assertEquals(2, evaluator.evaluar(Arrays.asList("gethash", Arrays.asList("quote", "a"), "h")));
+        // Una lista distinta pero equal encuentra el mismo valor
+        assertEquals(3, evaluator.evaluar(Arrays.asList("gethash", Arrays.asList("quote", Arrays.asList(1, 2)), "h")));
+
+        assertEquals(true, evaluator.evaluar(Arrays.asList("remhash", 1, "h")));
+        assertEquals(false, evaluator.evaluar(Arrays.asList("remhash", 1, "h")));
+        assertNull(evaluator.evaluar(Arrays.asList("gethash", 1, "h")));
+    }
+
+    @Test
+    public void testCrecimientoYBorrados() {
+        LispHashTable tabla = new LispHashTable();
+        for (int i = 0; i < 1000; i++) {
+            tabla.put(i, i * 2);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            tabla.remove(i);
+        }
+        assertEquals(500, tabla.size());
+        assertEquals(14, tabla.get(7));
+        assertNull(tabla.get(8));
+
+        // Reinsertar sobre posiciones borradas
+        for (int i = 0; i < 1000; i += 2) {
+            tabla.put(i, -i);
+        }
+        assertEquals(1000, tabla.size());
+        assertEquals(-8, tabla.get(8));
+        assertEquals(14, tabla.get(7));
+    }
+
+    @Test
+    public void testHashConsistenteConEqual() {
+        Object a = Arrays.asList(1, Arrays.asList("x", 2.5));
+        Object b = Arrays.asList(1, Arrays.asList("x", 2.5));
+        assertTrue(LispEvaluator.equalLisp(a, b));
+        assertEquals(LispHashTable.hashLisp(a), LispHashTable.hashLisp(b));
+    }
+
+    @Test
+    public void testForEachConInsercionesQueRedimensionan() throws EvaluatorException {
+        LispHashTable tabla = new LispHashTable();
+        for (int i = 0; i < 11; i++) {
+            tabla.put(i, i);
+        }
+        tabla.forEach((k, v) -> {
+            assertNotNull(v);
+            if ((Integer) k < 100) tabla.put((Integer) k + 100, v);
+        });
+        assertEquals(22, tabla.size());
+        for (int i = 0; i < 11; i++) {
+            assertEquals(i, tabla.get(i));
+            assertEquals(i, tabla.get(i + 100));
+        }
+    }
+
+    @Test
+    public void testForEachNoVisitaLlavesEliminadasTrasRedimensionar() throws EvaluatorException {
+        LispHashTable tabla = new LispHashTable();
+        for (int i = 0; i < 11; i++) {
+            tabla.put(i, i);
+        }
+        List<Object> visitadas = new ArrayList<>();
+        tabla.forEach((k, v) -> {
+            assertEquals(k, v);
+            if (visitadas.isEmpty()) {
+                // Forzar un redimensionamiento y luego eliminar las demás llaves originales
+                for (int i = 1000; i < 1010; i++) {
+                    tabla.put(i, i);
+                }
+                for (int i = 0; i < 11; i++) {
+                    if (!k.equals(i)) tabla.remove(i);
+                }
+            }
+            visitadas.add(k);
+        });
+        // Solo la primera llave original sigue viva; las agregadas pueden o no visitarse
+        for (int i = 1; i < visitadas.size(); i++) {
+            assertTrue((Integer) visitadas.get(i) >= 1000);
+        }
+        assertEquals(11, tabla.size());
+    }
+
+    @Test
+    public void testForEachLeeValoresActualesTrasRedimensionar() throws EvaluatorException {
+        LispHashTable tabla = new LispHashTable();
+        for (int i = 0; i < 11; i++) {
+            tabla.put("s" + i, i);
+        }
+        List<Object> valores = new ArrayList<>();
+        tabla.forEach((k, v) -> {
+            if (valores.isEmpty()) {
+                for (int i = 0; i < 10; i++) {
+                    tabla.put(i, i);
+                }
+                for (int i = 0; i < 11; i++) {
+                    if (!k.equals("s" + i)) tabla.put("s" + i, -1);
+                }
+            }
+            valores.add(v);
+        });
+        assertEquals(11, valores.size());
+        for (int i = 1; i < valores.size(); i++) {
+            assertEquals(-1, valores.get(i));
+        }
+    }
+
+    @Test
+    public void testMaphashEliminaEntradaActual() throws EvaluatorException {
+        evaluator.evaluar(Arrays.asList("setq", "h", Arrays.asList("make-hash-table")));
+        evaluator.evaluar(Arrays.asList("puthash", 1, 10, "h"));
+        evaluator.evaluar(Arrays.asList("puthash", 2, 20, "h"));
+
+        // (defun visitar (k v) (remhash k h))
+        evaluator.evaluar(Arrays.asList("defun", "visitar", Arrays.asList("k", "v"), Arrays.asList("remhash", "k", "h")));
+        assertNull(evaluator.evaluar(Arrays.asList("maphash", Arrays.asList("quote", "visitar"), "h")));
+        assertNull(evaluator.evaluar(Arrays.asList("gethash", 1, "h")));
+        assertNull(evaluator.evaluar(Arrays.asList("gethash", 2, "h")));
+        assertEquals(0, ((LispHashTable) evaluator.evaluar("h")).size());
+    }
+}